@@ -1,9 +1,13 @@
 package com.homeserver.mediaserver.controller;
 
+import com.homeserver.mediaserver.dto.Keyframe;
 import com.homeserver.mediaserver.dto.MediaFileDTO;
+import com.homeserver.mediaserver.dto.SpriteSheetDTO;
 import com.homeserver.mediaserver.dto.UploadResponse;
 import com.homeserver.mediaserver.entity.MediaFile;
 import com.homeserver.mediaserver.service.MediaService;
+import com.homeserver.mediaserver.service.SpriteService;
+import com.homeserver.mediaserver.service.VideoMetadataService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
@@ -18,6 +22,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -26,6 +31,8 @@ import java.util.Map;
 public class MediaController {
 
     private final MediaService mediaService;
+    private final SpriteService spriteService;
+    private final VideoMetadataService videoMetadataService;
 
     @PostMapping("/upload")
     public ResponseEntity<UploadResponse> uploadFile(
@@ -106,7 +113,7 @@ public class MediaController {
 
             // Handle range requests for video streaming
             if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                return handleRangeRequest(file, rangeHeader, fileSize, contentType);
+                return handleRangeRequest(mediaFile, file, rangeHeader, fileSize, contentType);
             }
 
             // Return full file if no range requested
@@ -123,15 +130,16 @@ public class MediaController {
         }
     }
 
-    private ResponseEntity<byte[]> handleRangeRequest(File file, String rangeHeader, 
+    private ResponseEntity<byte[]> handleRangeRequest(MediaFile mediaFile, File file, String rangeHeader,
                                                       long fileSize, String contentType) {
         try {
             // Parse range header
             String[] ranges = rangeHeader.replace("bytes=", "").split("-");
             long start = Long.parseLong(ranges[0]);
+            // Open ended ranges get a bounded chunk that ends on a keyframe boundary
             long end = ranges.length > 1 && !ranges[1].isEmpty() 
                     ? Long.parseLong(ranges[1]) 
-                    : fileSize - 1;
+                    : videoMetadataService.alignChunkEnd(mediaFile, start, fileSize);
 
             // Validate range
             if (start > end || end >= fileSize) {
@@ -176,6 +184,114 @@ public class MediaController {
         }
     }
 
+    @GetMapping("/files/{id}/keyframes")
+    public ResponseEntity<List<Keyframe>> getKeyframes(@PathVariable Long id) {
+        try {
+            MediaFile mediaFile = mediaService.getFileById(id);
+            List<Keyframe> keyframes = videoMetadataService.getKeyframes(mediaFile);
+
+            // The index is filled in after upload, only cache it once it exists
+            CacheControl cacheControl = keyframes.isEmpty()
+                    ? CacheControl.noCache()
+                    : CacheControl.maxAge(30, TimeUnit.DAYS).cachePublic();
+            return ResponseEntity.ok()
+                    .cacheControl(cacheControl)
+                    .body(keyframes);
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/files/{id}/storyboard.vtt")
+    public ResponseEntity<Resource> getStoryboard(@PathVariable Long id) {
+        try {
+            MediaFile mediaFile = mediaService.getFileById(id);
+            Resource resource = videoMetadataService.getStoryboard(mediaFile);
+
+            // Storyboards never change for a given file
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/vtt"))
+                    .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS).cachePublic())
+                    .body(resource);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Storyboard not available for file {}: {}", id, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/files/{id}/storyboard/{sheet}.jpg")
+    public ResponseEntity<Resource> getStoryboardSheet(@PathVariable Long id, @PathVariable int sheet) {
+        try {
+            MediaFile mediaFile = mediaService.getFileById(id);
+            Resource resource = videoMetadataService.getStoryboardSheet(mediaFile, sheet);
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS).cachePublic())
+                    .body(resource);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Storyboard sheet {} not available for file {}: {}", sheet, id, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/thumbnails/sprite/map")
+    public ResponseEntity<SpriteSheetDTO> getSpriteMap(
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "${app.media.sprite-page-size:50}") int size) {
+        try {
+            SpriteSheetDTO sheet = spriteService.getSpriteSheet(emptyToNull(category), page, size);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(sheet.getVersion())
+                    .body(sheet);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            log.error("Error building sprite sheet", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/thumbnails/sprite")
+    public ResponseEntity<Resource> getSprite(
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "${app.media.sprite-page-size:50}") int size,
+            @RequestParam(required = false) String version) {
+        try {
+            if (version != null) {
+                // Only the exact version is served, its tiles match the map the client holds.
+                // Outdated versions are 404 and the client fetches the map again.
+                Resource resource = spriteService.getSpriteImage(emptyToNull(category), page, size, version);
+                return ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                        .eTag(version)
+                        .body(resource);
+            }
+
+            SpriteSheetDTO sheet = spriteService.getSpriteSheet(emptyToNull(category), page, size);
+            Resource resource = spriteService.getSpriteImage(sheet);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(sheet.getVersion())
+                    .body(resource);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            // Outdated version or an empty page
+            log.debug("Sprite sheet not available: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
     @DeleteMapping("/files/{id}")
     public ResponseEntity<Map<String, String>> deleteFile(@PathVariable Long id) {
         try {
@@ -0,0 +1,13 @@
+package com.homeserver.mediaserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Keyframe {
+    private double time; // seconds
+    private long position; // byte offset in the file
+}
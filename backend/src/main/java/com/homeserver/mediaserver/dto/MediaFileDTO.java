@@ -19,4 +19,10 @@ public class MediaFileDTO {
     private String category;
     private LocalDateTime uploadedAt;
     private LocalDateTime modifiedAt;
+    private Double durationSeconds;
+    private Integer videoWidth;
+    private Integer videoHeight;
+    private String videoCodec;
+    private String audioCodec;
+    private boolean storyboardAvailable;
 }
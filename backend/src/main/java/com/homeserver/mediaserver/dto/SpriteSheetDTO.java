@@ -0,0 +1,20 @@
+package com.homeserver.mediaserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpriteSheetDTO {
+    private String category; // null for all files
+    private int page;
+    private int size;
+    private String version;
+    private int width;
+    private int height;
+    private Map<Long, SpriteTile> tiles; // keyed by media file id
+}
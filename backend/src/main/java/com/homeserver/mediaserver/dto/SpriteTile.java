@@ -0,0 +1,15 @@
+package com.homeserver.mediaserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpriteTile {
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+}
@@ -0,0 +1,43 @@
+package com.homeserver.mediaserver.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "media_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBlob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, unique = true, length = 64)
+    private String checksum; // SHA-256 of the content
+    
+    @Column(nullable = false)
+    private String blobPath;
+    
+    @Column(nullable = false)
+    private Long size;
+    
+    private String thumbnailPath; // shared by every media file with this content
+    
+    private String storyboardPath; // shared like the thumbnail
+    
+    private String keyframeIndexPath; // in the same directory as the storyboard
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -43,6 +43,23 @@ public class MediaFile {
     
     private String checksum;
     
+    private Long blobId; // null until the file is moved into the blob store
+    
+    // Video metadata, filled in by ffprobe after upload
+    private Double durationSeconds;
+    
+    private Integer videoWidth;
+    
+    private Integer videoHeight;
+    
+    private String videoCodec;
+    
+    private String audioCodec;
+    
+    private String keyframeIndexPath; // binary (time, byte position) pairs, next to the storyboard
+    
+    private String storyboardPath; // WebVTT file, sprite sheets sit next to it
+    
     @PrePersist
     protected void onCreate() {
         uploadedAt = LocalDateTime.now();
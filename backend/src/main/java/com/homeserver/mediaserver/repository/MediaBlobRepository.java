@@ -0,0 +1,18 @@
+package com.homeserver.mediaserver.repository;
+
+import com.homeserver.mediaserver.entity.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, Long> {
+    
+    Optional<MediaBlob> findByChecksum(String checksum);
+    
+    @Query("SELECT b FROM MediaBlob b WHERE NOT EXISTS (SELECT m FROM MediaFile m WHERE m.blobId = b.id)")
+    List<MediaBlob> findUnreferenced();
+}
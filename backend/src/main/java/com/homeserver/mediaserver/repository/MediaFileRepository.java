@@ -1,6 +1,7 @@
 package com.homeserver.mediaserver.repository;
 
 import com.homeserver.mediaserver.entity.MediaFile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -16,7 +17,7 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Long> {
     
     List<MediaFile> findByCategory(String category);
     
-    @Query("SELECT m FROM MediaFile m WHERE m.category = :category ORDER BY m.uploadedAt DESC")
+    @Query("SELECT m FROM MediaFile m WHERE m.category = :category ORDER BY m.uploadedAt DESC, m.id DESC")
     List<MediaFile> findByCategoryOrderByUploadedAtDesc(@Param("category") String category);
     
     @Query("SELECT m FROM MediaFile m WHERE LOWER(m.fileName) LIKE LOWER(CONCAT('%', :keyword, '%'))")
@@ -24,6 +25,20 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Long> {
     
     Optional<MediaFile> findByChecksum(String checksum);
     
-    @Query("SELECT m FROM MediaFile m ORDER BY m.uploadedAt DESC")
+    // Pages for sprite sheets, sorting comes with the Pageable
+    List<MediaFile> findByCategory(String category, Pageable pageable);
+    
+    List<MediaFile> findAllBy(Pageable pageable);
+    
+    List<MediaFile> findByBlobIdIsNull();
+    
+    long countByBlobId(Long blobId);
+    
+    Optional<MediaFile> findFirstByBlobIdAndDurationSecondsIsNotNullAndIdNot(Long blobId, Long id);
+    
+    // Videos uploaded before metadata extraction existed, or whose extraction failed
+    List<MediaFile> findByMimeTypeStartingWithAndDurationSecondsIsNull(String mimeTypePrefix);
+    
+    @Query("SELECT m FROM MediaFile m ORDER BY m.uploadedAt DESC, m.id DESC")
     List<MediaFile> findAllOrderByUploadedAtDesc();
 }
@@ -0,0 +1,112 @@
+package com.homeserver.mediaserver.service;
+
+import com.homeserver.mediaserver.entity.MediaBlob;
+import com.homeserver.mediaserver.entity.MediaFile;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Moves media files uploaded before the blob store existed into it on startup.
+ * Each file is hashed, duplicates are collapsed onto one blob and, once the row
+ * references the blob, the category path is replaced by a link. References are
+ * the rows themselves, so an interrupted run leaves at most an unreferenced
+ * blob, which the next startup deletes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlobStoreMigration {
+
+    private final MediaFileRepository mediaFileRepository;
+    private final BlobStoreService blobStoreService;
+
+    @Value("${app.media.blob-migration-enabled:true}")
+    private boolean migrationEnabled;
+
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!migrationEnabled) {
+            return;
+        }
+
+        List<MediaFile> legacyFiles = mediaFileRepository.findByBlobIdIsNull();
+        if (!legacyFiles.isEmpty()) {
+            migrateFiles(legacyFiles);
+        }
+
+        // Blobs whose row never got saved, e.g. the application stopped mid upload
+        try {
+            int deleted = blobStoreService.deleteUnreferenced();
+            if (deleted > 0) {
+                log.info("Deleted {} unreferenced blobs", deleted);
+            }
+        } catch (IOException e) {
+            log.error("Error deleting unreferenced blobs", e);
+        }
+    }
+
+    private void migrateFiles(List<MediaFile> legacyFiles) {
+        log.info("Migrating {} media files into the blob store", legacyFiles.size());
+        int migrated = 0;
+        for (MediaFile mediaFile : legacyFiles) {
+            try {
+                if (migrateFile(mediaFile)) {
+                    migrated++;
+                }
+            } catch (Exception e) {
+                log.error("Error migrating file: {}", mediaFile.getFilePath(), e);
+            }
+        }
+        log.info("Blob store migration finished: {} of {} files migrated", migrated, legacyFiles.size());
+    }
+
+    private boolean migrateFile(MediaFile mediaFile) throws IOException {
+        Path filePath = Paths.get(mediaFile.getFilePath());
+        if (!Files.exists(filePath)) {
+            log.warn("Skipping migration of missing file: {}", filePath);
+            return false;
+        }
+
+        // Leaves the file untouched, so a failure up to the save changes nothing
+        MediaBlob blob = blobStoreService.adopt(filePath);
+        String ownThumbnail = mediaFile.getThumbnailPath();
+        boolean duplicateThumbnail = blob.getThumbnailPath() != null && !blob.getThumbnailPath().equals(ownThumbnail);
+        try {
+            if (duplicateThumbnail) {
+                mediaFile.setThumbnailPath(blob.getThumbnailPath());
+            }
+            mediaFile.setFileSize(blob.getSize());
+            mediaFile.setChecksum(blob.getChecksum());
+            mediaFile.setBlobId(blob.getId());
+            mediaFileRepository.save(mediaFile);
+        } catch (RuntimeException e) {
+            blobStoreService.abort(blob, null);
+            throw e;
+        }
+        blobStoreService.commit(blob);
+
+        // Keep one thumbnail per blob and drop the duplicates
+        if (duplicateThumbnail && ownThumbnail != null) {
+            Files.deleteIfExists(Paths.get(ownThumbnail));
+        } else if (blob.getThumbnailPath() == null && ownThumbnail != null) {
+            blobStoreService.setThumbnail(blob.getId(), ownThumbnail);
+        }
+
+        // The row is saved, swapping the file for a link only saves space from here on
+        blobStoreService.link(blob, filePath);
+        return true;
+    }
+}
@@ -0,0 +1,260 @@
+package com.homeserver.mediaserver.service;
+
+import com.homeserver.mediaserver.entity.MediaBlob;
+import com.homeserver.mediaserver.repository.MediaBlobRepository;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Content-addressed storage. Every distinct file content is kept once under
+ * its SHA-256 checksum, and category paths are links to that blob.
+ *
+ * A blob's references are the media_files rows pointing at it, counted when
+ * a reference is dropped, so there is no counter to drift out of step. Between
+ * {@link #store}/{@link #adopt} and saving the row the caller holds a pending
+ * reference, which it must {@link #commit} or {@link #abort}. A blob is deleted,
+ * with its thumbnail and video assets, once it has neither.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlobStoreService {
+
+    private final MediaBlobRepository mediaBlobRepository;
+    private final MediaFileRepository mediaFileRepository;
+
+    @Value("${app.media.blob-path}")
+    private String blobBasePath;
+
+    // Blob id -> references handed out whose media file row is not saved yet
+    private final Map<Long, Integer> pendingReferences = new HashMap<>();
+
+    /**
+     * Streams new content into the store, hashing it on the way.
+     * Returns the blob with a pending reference held for the caller.
+     */
+    public MediaBlob store(InputStream inputStream) throws IOException {
+        Path blobDir = Paths.get(blobBasePath);
+        Files.createDirectories(blobDir);
+
+        // Temp file inside the store so the final move never crosses filesystems
+        Path tempFile = Files.createTempFile(blobDir, "upload-", ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            try (DigestInputStream digestStream = new DigestInputStream(inputStream, digest)) {
+                Files.copy(digestStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return addReference(toHex(digest.digest()), tempFile, true);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Adds an existing file to the store without moving or changing it. Used to
+     * migrate files uploaded before the blob store existed.
+     * Returns the blob with a pending reference held for the caller.
+     */
+    public MediaBlob adopt(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (DigestInputStream digestStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+            digestStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return addReference(toHex(digest.digest()), file, false);
+    }
+
+    /**
+     * The caller's media file row is saved and now holds the reference.
+     */
+    public synchronized void commit(MediaBlob blob) {
+        releasePending(blob.getId());
+    }
+
+    /**
+     * The caller gave up before saving its media file row. Deletes its link,
+     * if it made one, and the blob when nothing else references it.
+     */
+    public synchronized void abort(MediaBlob blob, Path linkPath) throws IOException {
+        releasePending(blob.getId());
+        if (linkPath != null) {
+            Files.deleteIfExists(linkPath);
+        }
+        deleteIfUnreferenced(blob.getId());
+    }
+
+    /**
+     * Makes {@code target} point at the blob. Uses a hard link where possible,
+     * then a symbolic link, e.g. when the store is on another filesystem, and a
+     * plain copy as a last resort. Either way {@code target} stays the media
+     * file's own path. An existing {@code target} must already hold the blob's
+     * content and is replaced atomically.
+     */
+    public void link(MediaBlob blob, Path target) throws IOException {
+        Path blobPath = Paths.get(blob.getBlobPath());
+        if (Files.exists(target) && Files.isSameFile(target, blobPath)) {
+            return;
+        }
+
+        // Link next to the target first, then swap it in atomically
+        Path tempLink = target.resolveSibling("." + target.getFileName() + ".link");
+        try {
+            Files.deleteIfExists(tempLink);
+            try {
+                Files.createLink(tempLink, blobPath);
+            } catch (UnsupportedOperationException | IOException e) {
+                log.debug("Hard link not possible for {}, using a symbolic link: {}", target, e.getMessage());
+                Files.createSymbolicLink(tempLink, blobPath.toAbsolutePath());
+            }
+            Files.move(tempLink, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.deleteIfExists(tempLink);
+            log.warn("Links not possible for {}, keeping a copy: {}", target, e.getMessage());
+            if (!Files.exists(target)) {
+                Files.copy(blobPath, target);
+            }
+        }
+    }
+
+    public synchronized void setThumbnail(Long blobId, String thumbnailPath) {
+        mediaBlobRepository.findById(blobId).ifPresent(blob -> {
+            blob.setThumbnailPath(thumbnailPath);
+            mediaBlobRepository.save(blob);
+        });
+    }
+
+    public synchronized void setVideoAssets(Long blobId, String storyboardPath, String keyframeIndexPath) {
+        mediaBlobRepository.findById(blobId).ifPresent(blob -> {
+            blob.setStoryboardPath(storyboardPath);
+            blob.setKeyframeIndexPath(keyframeIndexPath);
+            mediaBlobRepository.save(blob);
+        });
+    }
+
+    /**
+     * Deletes a media file's link after its row is deleted, and the blob when
+     * that row was the last reference.
+     */
+    public synchronized void removeReference(Long blobId, Path filePath) throws IOException {
+        Files.deleteIfExists(filePath);
+        deleteIfUnreferenced(blobId);
+    }
+
+    /**
+     * Deletes blobs no media file references, left behind when the application
+     * stopped between storing content and saving its row. Only safe while no
+     * upload or migration is running, i.e. on startup.
+     */
+    public synchronized int deleteUnreferenced() throws IOException {
+        int deleted = 0;
+        for (MediaBlob blob : mediaBlobRepository.findUnreferenced()) {
+            if (!pendingReferences.containsKey(blob.getId())) {
+                deleteBlob(blob);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private synchronized MediaBlob addReference(String checksum, Path source, boolean moveSource) throws IOException {
+        Optional<MediaBlob> existing = mediaBlobRepository.findByChecksum(checksum);
+        if (existing.isPresent() && Files.exists(Paths.get(existing.get().getBlobPath()))) {
+            MediaBlob blob = existing.get();
+            pendingReferences.merge(blob.getId(), 1, Integer::sum);
+            log.info("Deduplicated content: {}", checksum);
+            return blob;
+        }
+
+        Path blobPath = resolveBlobPath(checksum);
+        Files.createDirectories(blobPath.getParent());
+        if (moveSource) {
+            Files.move(source, blobPath, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(blobPath);
+            try {
+                Files.createLink(blobPath, source);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(source, blobPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        // A row whose file went missing is repopulated
+        MediaBlob blob = existing.orElseGet(() -> {
+            MediaBlob created = new MediaBlob();
+            created.setChecksum(checksum);
+            return created;
+        });
+        blob.setBlobPath(blobPath.toString());
+        blob.setSize(Files.size(blobPath));
+        blob = mediaBlobRepository.save(blob);
+        pendingReferences.merge(blob.getId(), 1, Integer::sum);
+        return blob;
+    }
+
+    private void releasePending(Long blobId) {
+        pendingReferences.computeIfPresent(blobId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void deleteIfUnreferenced(Long blobId) throws IOException {
+        if (pendingReferences.containsKey(blobId) || mediaFileRepository.countByBlobId(blobId) > 0) {
+            return;
+        }
+        Optional<MediaBlob> blob = mediaBlobRepository.findById(blobId);
+        if (blob.isPresent()) {
+            deleteBlob(blob.get());
+        }
+    }
+
+    private void deleteBlob(MediaBlob blob) throws IOException {
+        Files.deleteIfExists(Paths.get(blob.getBlobPath()));
+        if (blob.getThumbnailPath() != null) {
+            Files.deleteIfExists(Paths.get(blob.getThumbnailPath()));
+        }
+        // Storyboard and keyframe index share one directory
+        String videoAssetPath = blob.getStoryboardPath() != null ? blob.getStoryboardPath() : blob.getKeyframeIndexPath();
+        if (videoAssetPath != null) {
+            FileUtils.deleteDirectory(Paths.get(videoAssetPath).getParent().toFile());
+        }
+        mediaBlobRepository.delete(blob);
+
+        log.info("Deleted blob: {}", blob.getChecksum());
+    }
+
+    private Path resolveBlobPath(String checksum) {
+        // Two levels of fan-out keep directories small
+        return Paths.get(blobBasePath, checksum.substring(0, 2), checksum.substring(2, 4), checksum);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toHex(byte[] hashBytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hashBytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -2,6 +2,7 @@ package com.homeserver.mediaserver.service;
 
 import com.homeserver.mediaserver.dto.MediaFileDTO;
 import com.homeserver.mediaserver.dto.UploadResponse;
+import com.homeserver.mediaserver.entity.MediaBlob;
 import com.homeserver.mediaserver.entity.MediaFile;
 import com.homeserver.mediaserver.repository.MediaFileRepository;
 import lombok.RequiredArgsConstructor;
@@ -15,13 +16,11 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -32,6 +31,8 @@ public class MediaService {
 
     private final MediaFileRepository mediaFileRepository;
     private final ThumbnailService thumbnailService;
+    private final BlobStoreService blobStoreService;
+    private final VideoMetadataService videoMetadataService;
     private final SimpMessagingTemplate messagingTemplate;
 
     @Value("${app.media.base-path}")
@@ -52,39 +53,64 @@ public class MediaService {
         Path categoryPath = Paths.get(mediaBasePath, category);
         Files.createDirectories(categoryPath);
 
-        // Save file
+        // Store content once, keyed by checksum
+        MediaBlob blob;
+        try (InputStream inputStream = file.getInputStream()) {
+            blob = blobStoreService.store(inputStream);
+        }
+
         String fileName = file.getOriginalFilename();
-        Path filePath = categoryPath.resolve(fileName);
-        
-        // Handle duplicate filenames
-        int counter = 1;
-        while (Files.exists(filePath)) {
-            String nameWithoutExt = fileName.substring(0, fileName.lastIndexOf('.'));
-            String extension = fileName.substring(fileName.lastIndexOf('.'));
-            fileName = nameWithoutExt + "_" + counter + extension;
+        Path filePath = null;
+        boolean linked = false;
+        MediaFile mediaFile;
+        try {
             filePath = categoryPath.resolve(fileName);
-            counter++;
-        }
 
-        file.transferTo(filePath.toFile());
+            // Handle duplicate filenames, names without extension get the counter at the end
+            int extensionStart = fileName.lastIndexOf('.');
+            String nameWithoutExt = extensionStart > 0 ? fileName.substring(0, extensionStart) : fileName;
+            String extension = extensionStart > 0 ? fileName.substring(extensionStart) : "";
+            int counter = 1;
+            while (Files.exists(filePath)) {
+                fileName = nameWithoutExt + "_" + counter + extension;
+                filePath = categoryPath.resolve(fileName);
+                counter++;
+            }
 
-        // Calculate checksum
-        String checksum = calculateChecksum(filePath.toFile());
+            // Present the blob under its own category path
+            blobStoreService.link(blob, filePath);
+            linked = true;
 
-        // Create media file entity
-        MediaFile mediaFile = new MediaFile();
-        mediaFile.setFileName(fileName);
-        mediaFile.setFilePath(filePath.toString());
-        mediaFile.setMimeType(file.getContentType());
-        mediaFile.setFileSize(file.getSize());
-        mediaFile.setCategory(category);
-        mediaFile.setChecksum(checksum);
+            // Create media file entity
+            mediaFile = new MediaFile();
+            mediaFile.setFileName(fileName);
+            mediaFile.setFilePath(filePath.toString());
+            mediaFile.setMimeType(file.getContentType());
+            mediaFile.setFileSize(blob.getSize());
+            mediaFile.setCategory(category);
+            mediaFile.setChecksum(blob.getChecksum());
+            mediaFile.setBlobId(blob.getId());
+            mediaFile.setThumbnailPath(blob.getThumbnailPath());
 
-        // Generate thumbnail asynchronously
-        generateThumbnailAsync(mediaFile);
+            // Save to database
+            mediaFile = mediaFileRepository.save(mediaFile);
+        } catch (IOException | RuntimeException e) {
+            // Drop the reference so the blob does not outlive a failed upload
+            // Only the link made here is ours, before that filePath may name another upload's file
+            blobStoreService.abort(blob, linked ? filePath : null);
+            throw e;
+        }
+        blobStoreService.commit(blob);
 
-        // Save to database
-        mediaFile = mediaFileRepository.save(mediaFile);
+        // Content seen before already has its thumbnail
+        if (mediaFile.getThumbnailPath() == null) {
+            generateThumbnailAsync(mediaFile);
+        }
+
+        // Probe and storyboard run in the background, they take a while on long videos
+        if (mediaFile.getMimeType() != null && mediaFile.getMimeType().startsWith("video/")) {
+            videoMetadataService.processVideo(mediaFile.getId());
+        }
 
         log.info("File uploaded successfully: {}", fileName);
         
@@ -101,6 +127,9 @@ public class MediaService {
             if (thumbnailPath != null) {
                 mediaFile.setThumbnailPath(thumbnailPath);
                 mediaFileRepository.save(mediaFile);
+                if (mediaFile.getBlobId() != null) {
+                    blobStoreService.setThumbnail(mediaFile.getBlobId(), thumbnailPath);
+                }
                 
                 // Notify clients via WebSocket
                 messagingTemplate.convertAndSend("/topic/thumbnail", 
@@ -143,6 +172,11 @@ public class MediaService {
         }
     }
 
+    public MediaFile getFileById(Long id) {
+        return mediaFileRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("File not found: " + id));
+    }
+
     public MediaFile getFileByPath(String filePath) {
         return mediaFileRepository.findByFilePath(filePath)
                 .orElseThrow(() -> new RuntimeException("File not found: " + filePath));
@@ -170,26 +204,15 @@ public class MediaService {
         dto.setCategory(mediaFile.getCategory());
         dto.setUploadedAt(mediaFile.getUploadedAt());
         dto.setModifiedAt(mediaFile.getModifiedAt());
+        dto.setDurationSeconds(mediaFile.getDurationSeconds());
+        dto.setVideoWidth(mediaFile.getVideoWidth());
+        dto.setVideoHeight(mediaFile.getVideoHeight());
+        dto.setVideoCodec(mediaFile.getVideoCodec());
+        dto.setAudioCodec(mediaFile.getAudioCodec());
+        dto.setStoryboardAvailable(mediaFile.getStoryboardPath() != null);
         return dto;
     }
 
-    private String calculateChecksum(File file) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] fileBytes = FileUtils.readFileToByteArray(file);
-            byte[] hashBytes = digest.digest(fileBytes);
-            
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            log.error("Error calculating checksum", e);
-            return null;
-        }
-    }
-
     public boolean deleteFile(Long id) {
         try {
             Optional<MediaFile> mediaFileOpt = mediaFileRepository.findById(id);
@@ -199,19 +222,31 @@ public class MediaService {
             
             MediaFile mediaFile = mediaFileOpt.get();
             
-            // Delete physical file
-            Path filePath = Paths.get(mediaFile.getFilePath());
-            Files.deleteIfExists(filePath);
+            // Delete from database first, the row is the blob reference
+            mediaFileRepository.deleteById(id);
             
-            // Delete thumbnail if exists
-            if (mediaFile.getThumbnailPath() != null) {
-                Path thumbnailPath = Paths.get(mediaFile.getThumbnailPath());
-                Files.deleteIfExists(thumbnailPath);
+            Path filePath = Paths.get(mediaFile.getFilePath());
+            if (mediaFile.getBlobId() != null) {
+                // Content and thumbnail are shared, the blob store removes them with the last reference
+                blobStoreService.removeReference(mediaFile.getBlobId(), filePath);
+            } else {
+                // Delete physical file
+                Files.deleteIfExists(filePath);
+                
+                // Delete thumbnail if exists
+                if (mediaFile.getThumbnailPath() != null) {
+                    Path thumbnailPath = Paths.get(mediaFile.getThumbnailPath());
+                    Files.deleteIfExists(thumbnailPath);
+                }
+                
+                // Delete storyboard and keyframe index if they exist, they share a directory
+                String videoAssetPath = mediaFile.getStoryboardPath() != null
+                        ? mediaFile.getStoryboardPath() : mediaFile.getKeyframeIndexPath();
+                if (videoAssetPath != null) {
+                    FileUtils.deleteDirectory(Paths.get(videoAssetPath).getParent().toFile());
+                }
             }
             
-            // Delete from database
-            mediaFileRepository.deleteById(id);
-            
             log.info("Deleted file: {} (ID: {})", mediaFile.getFileName(), id);
             return true;
         } catch (Exception e) {
@@ -0,0 +1,318 @@
+package com.homeserver.mediaserver.service;
+
+import com.homeserver.mediaserver.dto.SpriteSheetDTO;
+import com.homeserver.mediaserver.dto.SpriteTile;
+import com.homeserver.mediaserver.entity.MediaFile;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Packs the thumbnails of one page of catalog results into a single JPEG
+ * sprite sheet, so a grid page needs one image request instead of one per card.
+ * Each sheet version is its own file. The previous version of a page is kept
+ * until the next rebuild, so clients holding the previous map can still load
+ * its image; older versions are deleted and answered with 404.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SpriteService {
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("[0-9a-f]{16}");
+
+    private final MediaFileRepository mediaFileRepository;
+
+    @Value("${app.media.thumbnail-path}")
+    private String thumbnailBasePath;
+
+    @Value("${app.media.thumbnail-width}")
+    private int thumbnailWidth;
+
+    @Value("${app.media.thumbnail-height}")
+    private int thumbnailHeight;
+
+    @Value("${app.media.folders}")
+    private List<String> mediaFolders;
+
+    @Value("${app.media.sprite-columns:10}")
+    private int spriteColumns;
+
+    @Value("${app.media.sprite-page-size:50}")
+    private int spritePageSize;
+
+    // Latest sprite built for each category/page/size
+    private final Map<String, CachedSprite> sprites = new ConcurrentHashMap<>();
+
+    /**
+     * Sprites are built lazily, so versions written by an earlier run are
+     * never referenced again.
+     */
+    @PostConstruct
+    public void clearSprites() {
+        try {
+            FileUtils.deleteDirectory(Paths.get(thumbnailBasePath, "sprites").toFile());
+        } catch (IOException e) {
+            log.warn("Could not clear sprites from an earlier run: {}", e.getMessage());
+        }
+    }
+
+    public SpriteSheetDTO getSpriteSheet(String category, int page, int size) throws IOException {
+        validate(category, page, size);
+
+        List<MediaFile> files = getPage(category, page, size);
+        String version = calculateVersion(files);
+        String key = spriteKey(category, page, size);
+
+        CachedSprite cached = sprites.get(key);
+        if (isCurrent(cached, version)) {
+            return cached.sheet;
+        }
+        return buildSprite(key, category, page, size, files, version).sheet;
+    }
+
+    /**
+     * Image of the current sheet version.
+     */
+    public Resource getSpriteImage(SpriteSheetDTO sheet) throws IOException {
+        if (sheet.getTiles().isEmpty()) {
+            throw new IOException("Sprite has no tiles: " + spriteKey(sheet.getCategory(), sheet.getPage(), sheet.getSize()));
+        }
+        return toResource(spritePath(spriteKey(sheet.getCategory(), sheet.getPage(), sheet.getSize()), sheet.getVersion()));
+    }
+
+    /**
+     * Image of exactly this version, the current or the previous one. Fails for
+     * older versions, so a versioned URL never serves another version's tiles.
+     */
+    public Resource getSpriteImage(String category, int page, int size, String version) throws IOException {
+        validate(category, page, size);
+        if (!VERSION_PATTERN.matcher(version).matches()) {
+            throw new IllegalArgumentException("Invalid version: " + version);
+        }
+
+        Path imagePath = spritePath(spriteKey(category, page, size), version);
+        if (!Files.exists(imagePath)) {
+            // Not built yet in this run, only the current version can be
+            SpriteSheetDTO sheet = getSpriteSheet(category, page, size);
+            if (!sheet.getVersion().equals(version)) {
+                throw new IOException("Sprite version no longer available: " + version);
+            }
+        }
+        return toResource(imagePath);
+    }
+
+    private void validate(String category, int page, int size) {
+        if (category != null && !mediaFolders.contains(category)) {
+            throw new IllegalArgumentException("Invalid category: " + category);
+        }
+        // One page size only, every other size would be a separate set of sheets
+        if (page < 0 || size != spritePageSize) {
+            throw new IllegalArgumentException("Invalid page or size");
+        }
+    }
+
+    private List<MediaFile> getPage(String category, int page, int size) {
+        // Same ordering as the catalog listing, so pages line up with the grid
+        Pageable pageable = PageRequest.of(page, size,
+                Sort.by(Sort.Direction.DESC, "uploadedAt").and(Sort.by(Sort.Direction.DESC, "id")));
+        List<MediaFile> files = category != null
+                ? mediaFileRepository.findByCategory(category, pageable)
+                : mediaFileRepository.findAllBy(pageable);
+
+        return files.stream()
+                .filter(file -> file.getThumbnailPath() != null)
+                .collect(Collectors.toList());
+    }
+
+    private String spriteKey(String category, int page, int size) {
+        return (category != null ? category : "all") + "-" + page + "-" + size;
+    }
+
+    private Path spritePath(String key, String version) {
+        return Paths.get(thumbnailBasePath, "sprites", key + "-" + version + ".jpg");
+    }
+
+    private String calculateVersion(List<MediaFile> files) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (MediaFile file : files) {
+                digest.update((file.getId() + ":" + file.getThumbnailPath() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+
+            StringBuilder sb = new StringBuilder();
+            byte[] hashBytes = digest.digest();
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", hashBytes[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized CachedSprite buildSprite(String key, String category, int page, int size,
+                                                  List<MediaFile> files, String version) throws IOException {
+        // Another request may have built this version while we waited
+        CachedSprite previous = sprites.get(key);
+        if (isCurrent(previous, version)) {
+            return previous;
+        }
+
+        Map<Long, SpriteTile> tiles = new LinkedHashMap<>();
+        if (files.isEmpty()) {
+            CachedSprite empty = new CachedSprite(
+                    new SpriteSheetDTO(category, page, size, version, 0, 0, tiles), null);
+            replaceSprite(key, previous, empty);
+            return empty;
+        }
+
+        int columns = Math.max(1, Math.min(spriteColumns, files.size()));
+        int rows = (files.size() + columns - 1) / columns;
+        BufferedImage sheetImage = new BufferedImage(
+                columns * thumbnailWidth, rows * thumbnailHeight, BufferedImage.TYPE_INT_RGB);
+
+        // Tiles always come from the source thumbnails, which are small. Copying them
+        // out of the previous JPEG sheet would lose quality on every rebuild.
+        Graphics2D graphics = sheetImage.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(0, 0, sheetImage.getWidth(), sheetImage.getHeight());
+
+            int index = 0;
+            for (MediaFile file : files) {
+                BufferedImage thumbnail = readThumbnail(file);
+                if (thumbnail == null) {
+                    continue;
+                }
+
+                int cellX = (index % columns) * thumbnailWidth;
+                int cellY = (index / columns) * thumbnailHeight;
+                tiles.put(file.getId(), placeTile(graphics, thumbnail, cellX, cellY));
+                index++;
+            }
+        } finally {
+            graphics.dispose();
+        }
+
+        Path imagePath = spritePath(key, version);
+        Files.createDirectories(imagePath.getParent());
+        ImageIO.write(sheetImage, "jpg", imagePath.toFile());
+
+        CachedSprite sprite = new CachedSprite(
+                new SpriteSheetDTO(category, page, size, version,
+                        sheetImage.getWidth(), sheetImage.getHeight(), tiles),
+                imagePath);
+        replaceSprite(key, previous, sprite);
+
+        log.info("Sprite generated: {} ({} tiles)", imagePath, tiles.size());
+        return sprite;
+    }
+
+    private boolean isCurrent(CachedSprite sprite, String version) {
+        // A sheet whose image went missing from disk is built again
+        return sprite != null && sprite.sheet.getVersion().equals(version)
+                && (sprite.imagePath == null || Files.exists(sprite.imagePath));
+    }
+
+    private SpriteTile placeTile(Graphics2D graphics, BufferedImage image, int cellX, int cellY) {
+        // Thumbnails already fit the cell, scale down only if one does not
+        double scale = Math.min(1.0, Math.min(
+                (double) thumbnailWidth / image.getWidth(),
+                (double) thumbnailHeight / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int x = cellX + (thumbnailWidth - width) / 2;
+        int y = cellY + (thumbnailHeight - height) / 2;
+
+        graphics.drawImage(image, x, y, width, height, null);
+        return new SpriteTile(x, y, width, height);
+    }
+
+    private BufferedImage readThumbnail(MediaFile file) {
+        try {
+            BufferedImage image = ImageIO.read(Paths.get(file.getThumbnailPath()).toFile());
+            if (image == null) {
+                log.warn("Unreadable thumbnail for sprite: {}", file.getThumbnailPath());
+            }
+            return image;
+        } catch (IOException e) {
+            log.warn("Missing thumbnail for sprite: {}", file.getThumbnailPath());
+            return null;
+        }
+    }
+
+    private void replaceSprite(String key, CachedSprite previous, CachedSprite sprite) {
+        sprites.put(key, sprite);
+
+        // Keep the new and the previous version, delete every older one of this page
+        Set<Path> keep = new HashSet<>();
+        keep.add(sprite.imagePath);
+        if (previous != null) {
+            keep.add(previous.imagePath);
+        }
+        Pattern versionFile = Pattern.compile(Pattern.quote(key) + "-" + VERSION_PATTERN.pattern() + "\\.jpg");
+        Path spriteDir = Paths.get(thumbnailBasePath, "sprites");
+        if (!Files.isDirectory(spriteDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spriteDir,
+                path -> versionFile.matcher(path.getFileName().toString()).matches())) {
+            for (Path path : stream) {
+                if (!keep.contains(path)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete stale sprites of: {}", key);
+        }
+    }
+
+    private Resource toResource(Path imagePath) throws IOException {
+        Resource resource = new UrlResource(imagePath.toUri());
+        if (resource.exists() && resource.isReadable()) {
+            return resource;
+        } else {
+            throw new IOException("Sprite not found: " + imagePath);
+        }
+    }
+
+    private static class CachedSprite {
+        private final SpriteSheetDTO sheet;
+        private final Path imagePath;
+
+        private CachedSprite(SpriteSheetDTO sheet, Path imagePath) {
+            this.sheet = sheet;
+            this.imagePath = imagePath;
+        }
+    }
+}
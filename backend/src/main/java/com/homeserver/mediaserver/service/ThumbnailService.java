@@ -1,16 +1,28 @@
 package com.homeserver.mediaserver.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.filters.ImageFilter;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
 
 @Slf4j
 @Service
@@ -25,12 +37,24 @@ public class ThumbnailService {
     @Value("${app.media.thumbnail-height}")
     private int thumbnailHeight;
 
+    @Value("${app.media.thumbnail-decode-budget-mb:192}")
+    private int decodeBudgetMb;
+
     @Value("${app.ffmpeg.path}")
     private String ffmpegPath;
 
     @Value("${app.ffmpeg.thumbnail-time}")
     private String thumbnailTime;
 
+    // One permit per megabyte of decoded pixel data held by in-flight image decodes
+    private Semaphore decodeBudget;
+
+    @PostConstruct
+    public void init() {
+        decodeBudgetMb = Math.max(1, decodeBudgetMb);
+        decodeBudget = new Semaphore(decodeBudgetMb, true);
+    }
+
     public String generateThumbnail(String filePath, String mimeType) {
         try {
             // Create thumbnail directory if not exists
@@ -55,13 +79,100 @@ public class ThumbnailService {
         String thumbnailFileName = UUID.randomUUID().toString() + ".jpg";
         Path thumbnailPath = Paths.get(thumbnailBasePath, thumbnailFileName);
 
-        Thumbnails.of(sourceFile)
-                .size(thumbnailWidth, thumbnailHeight)
-                .outputFormat("jpg")
-                .toFile(thumbnailPath.toFile());
+        try (ImageInputStream input = ImageIO.createImageInputStream(sourceFile)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                // Thumbnailator decodes through ImageIO as well, so there is nothing to fall back to
+                throw new IOException("No image reader for: " + filePath);
+            }
 
-        log.info("Image thumbnail generated: {}", thumbnailPath);
-        return thumbnailPath.toString();
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+
+                // Dimensions and orientation come from the header, nothing is decoded yet
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                Orientation orientation = readOrientation(reader);
+                boolean reoriented = orientation != null && orientation != Orientation.TOP_LEFT;
+                int subsampling = calculateSubsampling(width, height, isQuarterTurn(orientation));
+
+                int decodedWidth = (width + subsampling - 1) / subsampling;
+                int decodedHeight = (height + subsampling - 1) / subsampling;
+                int permits = calculateDecodePermits(decodedWidth, decodedHeight, reoriented);
+                acquireDecodeBudget(permits);
+                try {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                    BufferedImage image = reader.read(0, param);
+
+                    if (reoriented) {
+                        ImageFilter filter = ExifFilterUtils.getFilterForOrientation(orientation);
+                        image = filter.apply(image);
+                    }
+
+                    Thumbnails.of(image)
+                            .size(thumbnailWidth, thumbnailHeight)
+                            .outputFormat("jpg")
+                            .toFile(thumbnailPath.toFile());
+                } finally {
+                    decodeBudget.release(permits);
+                }
+
+                log.info("Image thumbnail generated: {} ({}x{}, subsampling {})",
+                        thumbnailPath, width, height, subsampling);
+                return thumbnailPath.toString();
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Largest subsampling factor that still leaves the decoded image at least
+     * twice the size it is scaled to, so the final resize keeps its quality.
+     * The thumbnail fits inside the box, so the edge with the larger ratio to
+     * its box edge decides. A quarter turn from EXIF swaps the box edges.
+     */
+    int calculateSubsampling(int width, int height, boolean quarterTurn) {
+        int boxWidth = quarterTurn ? thumbnailHeight : thumbnailWidth;
+        int boxHeight = quarterTurn ? thumbnailWidth : thumbnailHeight;
+        double ratio = Math.max(width / (2.0 * boxWidth), height / (2.0 * boxHeight));
+        return Math.max(1, (int) Math.floor(ratio));
+    }
+
+    private boolean isQuarterTurn(Orientation orientation) {
+        return orientation == Orientation.LEFT_TOP || orientation == Orientation.RIGHT_TOP
+                || orientation == Orientation.RIGHT_BOTTOM || orientation == Orientation.LEFT_BOTTOM;
+    }
+
+    int calculateDecodePermits(int width, int height, boolean reoriented) throws IOException {
+        // 4 bytes per pixel for the decoded raster, twice when EXIF orientation makes a transformed copy
+        long bytes = (long) width * height * 4 * (reoriented ? 2 : 1);
+        long megabytes = Math.max(1, (bytes + (1 << 20) - 1) >> 20);
+        if (megabytes > decodeBudgetMb) {
+            throw new IOException("Image needs " + megabytes + " MB to decode, over the "
+                    + decodeBudgetMb + " MB thumbnail decode budget");
+        }
+        return (int) megabytes;
+    }
+
+    private void acquireDecodeBudget(int permits) throws IOException {
+        try {
+            decodeBudget.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image decode budget", e);
+        }
+    }
+
+    private Orientation readOrientation(ImageReader reader) {
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (Exception e) {
+            log.debug("Could not read EXIF orientation", e);
+            return null;
+        }
     }
 
     private String generateVideoThumbnail(String filePath) {
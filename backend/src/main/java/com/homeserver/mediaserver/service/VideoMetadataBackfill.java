@@ -0,0 +1,55 @@
+package com.homeserver.mediaserver.service;
+
+import com.homeserver.mediaserver.entity.MediaFile;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Extracts metadata, keyframe index and storyboard of videos that have none,
+ * e.g. uploaded before extraction existed, in the background after startup.
+ * Runs after the blob store migration so duplicates share one extraction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VideoMetadataBackfill {
+
+    private final MediaFileRepository mediaFileRepository;
+    private final VideoMetadataService videoMetadataService;
+
+    @Value("${app.ffmpeg.metadata-backfill-enabled:true}")
+    private boolean backfillEnabled;
+
+    @Async
+    @Order(2)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfillEnabled) {
+            return;
+        }
+
+        List<MediaFile> videos = mediaFileRepository.findByMimeTypeStartingWithAndDurationSecondsIsNull("video/");
+        if (videos.isEmpty()) {
+            return;
+        }
+
+        // One at a time, ffmpeg already uses every core
+        log.info("Extracting video metadata for {} existing videos", videos.size());
+        int extracted = 0;
+        for (MediaFile video : videos) {
+            if (videoMetadataService.extractMetadata(video.getId())) {
+                extracted++;
+            }
+        }
+        log.info("Video metadata backfill finished: {} of {} videos", extracted, videos.size());
+    }
+}
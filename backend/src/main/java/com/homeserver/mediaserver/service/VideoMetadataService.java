@@ -0,0 +1,477 @@
+package com.homeserver.mediaserver.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homeserver.mediaserver.dto.Keyframe;
+import com.homeserver.mediaserver.entity.MediaFile;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Extracts duration, resolution, codecs and the keyframe index of uploaded
+ * videos with ffprobe, and renders a storyboard of frames at a fixed interval
+ * with ffmpeg for seek previews. The index and storyboard of one content are
+ * files in a shared directory under thumbnails/storyboards, keyed by checksum.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoMetadataService {
+
+    private static final int STORYBOARD_COLUMNS = 10;
+    private static final int STORYBOARD_ROWS = 10;
+    private static final String STORYBOARD_FILE = "storyboard.vtt";
+    private static final String KEYFRAME_INDEX_FILE = "keyframes.idx";
+    private static final int KEYFRAME_CACHE_SIZE = 64;
+    private static final int EXTRACTION_LOCK_STRIPES = 64;
+
+    private final MediaFileRepository mediaFileRepository;
+    private final BlobStoreService blobStoreService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.media.thumbnail-path}")
+    private String thumbnailBasePath;
+
+    @Value("${app.media.stream-chunk-size-mb:8}")
+    private int streamChunkSizeMb;
+
+    @Value("${app.ffmpeg.path}")
+    private String ffmpegPath;
+
+    @Value("${app.ffmpeg.ffprobe-path:/usr/bin/ffprobe}")
+    private String ffprobePath;
+
+    @Value("${app.ffmpeg.storyboard-interval:10}")
+    private int storyboardInterval;
+
+    @Value("${app.ffmpeg.storyboard-tile-width:160}")
+    private int tileWidth;
+
+    @Value("${app.ffmpeg.storyboard-tile-height:90}")
+    private int tileHeight;
+
+    // Striped by checksum, so the same content is never extracted twice at once
+    private final Object[] extractionLocks = IntStream.range(0, EXTRACTION_LOCK_STRIPES)
+            .mapToObj(i -> new Object())
+            .toArray();
+
+    // Index file -> parsed index, least recently used dropped first
+    private final Map<String, KeyframeIndex> keyframeCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, KeyframeIndex> eldest) {
+                    return size() > KEYFRAME_CACHE_SIZE;
+                }
+            });
+
+    @Async
+    public void processVideo(Long mediaFileId) {
+        extractMetadata(mediaFileId);
+    }
+
+    /**
+     * Extracts metadata, keyframe index and storyboard of one video and saves
+     * them on its row. Returns false when the row is gone or extraction failed.
+     */
+    public boolean extractMetadata(Long mediaFileId) {
+        Optional<MediaFile> mediaFileOpt = mediaFileRepository.findById(mediaFileId);
+        if (mediaFileOpt.isEmpty()) {
+            return false;
+        }
+
+        MediaFile mediaFile = mediaFileOpt.get();
+        String assetKey = mediaFile.getChecksum() != null ? mediaFile.getChecksum() : UUID.randomUUID().toString();
+        // A file without checksum gets a directory of its own and needs no lock
+        Object lock = mediaFile.getChecksum() != null
+                ? extractionLocks[Math.floorMod(assetKey.hashCode(), extractionLocks.length)]
+                : new Object();
+        synchronized (lock) {
+            try {
+                // Same content uploaded before, reuse what was extracted then
+                if (mediaFile.getBlobId() != null) {
+                    Optional<MediaFile> duplicate = mediaFileRepository
+                            .findFirstByBlobIdAndDurationSecondsIsNotNullAndIdNot(mediaFile.getBlobId(), mediaFile.getId());
+                    if (duplicate.isPresent()) {
+                        copyMetadata(duplicate.get(), mediaFile);
+                        mediaFileRepository.save(mediaFile);
+                        log.info("Video metadata reused for: {}", mediaFile.getFileName());
+                        return true;
+                    }
+                }
+
+                probe(mediaFile);
+                writeVideoAssets(mediaFile, assetKey);
+                mediaFileRepository.save(mediaFile);
+
+                if (mediaFile.getBlobId() != null) {
+                    blobStoreService.setVideoAssets(mediaFile.getBlobId(),
+                            mediaFile.getStoryboardPath(), mediaFile.getKeyframeIndexPath());
+                }
+                log.info("Video metadata extracted for: {} ({}s, {}x{}, {}/{})", mediaFile.getFileName(),
+                        mediaFile.getDurationSeconds(), mediaFile.getVideoWidth(), mediaFile.getVideoHeight(),
+                        mediaFile.getVideoCodec(), mediaFile.getAudioCodec());
+                return true;
+            } catch (Exception e) {
+                log.error("Error extracting video metadata for: {}", mediaFile.getFileName(), e);
+                return false;
+            }
+        }
+    }
+
+    public List<Keyframe> getKeyframes(MediaFile mediaFile) {
+        List<Keyframe> keyframes = new ArrayList<>();
+        KeyframeIndex index = loadKeyframeIndex(mediaFile);
+        if (index == null) {
+            return keyframes;
+        }
+
+        for (int i = 0; i < index.times.length; i++) {
+            keyframes.add(new Keyframe(index.times[i], index.positions[i]));
+        }
+        // The index is ordered by position, clients walk it by time
+        keyframes.sort(Comparator.comparingDouble(Keyframe::getTime));
+        return keyframes;
+    }
+
+    /**
+     * End of the chunk served for an open ended range request. The chunk is
+     * about stream-chunk-size long and is stretched to stop just before the
+     * next keyframe, so the player's following request starts on one.
+     */
+    public long alignChunkEnd(MediaFile mediaFile, long start, long fileSize) {
+        long chunkSize = (long) streamChunkSizeMb << 20;
+        long end = Math.min(fileSize - 1, start + chunkSize - 1);
+
+        KeyframeIndex index = loadKeyframeIndex(mediaFile);
+        if (index == null) {
+            return end;
+        }
+
+        // First keyframe after the end of the plain chunk
+        int next = Arrays.binarySearch(index.positions, end + 1);
+        if (next < 0) {
+            next = -next - 1;
+        }
+        if (next < index.positions.length) {
+            long position = index.positions[next];
+            // Do not let a sparse index turn the chunk into the whole file
+            if (position - 1 <= end + chunkSize) {
+                end = Math.min(fileSize - 1, position - 1);
+            }
+        }
+        return end;
+    }
+
+    public Resource getStoryboard(MediaFile mediaFile) throws IOException {
+        if (mediaFile.getStoryboardPath() == null) {
+            throw new IOException("No storyboard for: " + mediaFile.getFileName());
+        }
+        return toResource(Paths.get(mediaFile.getStoryboardPath()));
+    }
+
+    public Resource getStoryboardSheet(MediaFile mediaFile, int sheet) throws IOException {
+        if (mediaFile.getStoryboardPath() == null) {
+            throw new IOException("No storyboard for: " + mediaFile.getFileName());
+        }
+        Path sheetPath = Paths.get(mediaFile.getStoryboardPath()).resolveSibling(sheetFileName(sheet));
+        return toResource(sheetPath);
+    }
+
+    private void probe(MediaFile mediaFile) throws IOException, InterruptedException {
+        StringBuilder output = new StringBuilder();
+        int exitCode = run(List.of(
+                resolveExecutable(ffprobePath, "ffprobe"),
+                "-v", "error",
+                "-print_format", "json",
+                "-show_format",
+                "-show_streams",
+                mediaFile.getFilePath()
+        ), line -> output.append(line).append('\n'));
+
+        if (exitCode != 0) {
+            throw new IOException("ffprobe failed with exit code: " + exitCode);
+        }
+
+        JsonNode root = objectMapper.readTree(output.toString());
+        JsonNode duration = root.path("format").path("duration");
+        if (!duration.isMissingNode()) {
+            mediaFile.setDurationSeconds(duration.asDouble());
+        }
+
+        for (JsonNode stream : root.path("streams")) {
+            String codecType = stream.path("codec_type").asText();
+            if ("video".equals(codecType) && mediaFile.getVideoCodec() == null) {
+                mediaFile.setVideoCodec(stream.path("codec_name").asText(null));
+                mediaFile.setVideoWidth(stream.path("width").isMissingNode() ? null : stream.path("width").asInt());
+                mediaFile.setVideoHeight(stream.path("height").isMissingNode() ? null : stream.path("height").asInt());
+            } else if ("audio".equals(codecType) && mediaFile.getAudioCodec() == null) {
+                mediaFile.setAudioCodec(stream.path("codec_name").asText(null));
+            }
+        }
+    }
+
+    /**
+     * Writes the keyframe index and storyboard into a temporary directory and
+     * moves it into place in one step, so readers never see a half written
+     * storyboard and a failed run leaves nothing behind.
+     */
+    private void writeVideoAssets(MediaFile mediaFile, String assetKey) throws IOException, InterruptedException {
+        Path assetDir = Paths.get(thumbnailBasePath, "storyboards", assetKey);
+        Path tempDir = assetDir.resolveSibling("." + assetKey + "-" + UUID.randomUUID() + ".tmp");
+        Files.createDirectories(tempDir);
+        try {
+            KeyframeIndex index = readKeyframeIndex(mediaFile.getFilePath());
+            if (index != null) {
+                writeKeyframeIndex(tempDir.resolve(KEYFRAME_INDEX_FILE), index);
+            }
+            boolean storyboard = generateStoryboard(mediaFile, index, tempDir);
+            if (index == null && !storyboard) {
+                return;
+            }
+
+            // Left behind by an earlier run that did not get to save its row
+            FileUtils.deleteDirectory(assetDir.toFile());
+            Files.move(tempDir, assetDir, StandardCopyOption.ATOMIC_MOVE);
+
+            Path indexPath = assetDir.resolve(KEYFRAME_INDEX_FILE);
+            keyframeCache.remove(indexPath.toString());
+            mediaFile.setKeyframeIndexPath(index != null ? indexPath.toString() : null);
+            mediaFile.setStoryboardPath(storyboard ? assetDir.resolve(STORYBOARD_FILE).toString() : null);
+        } finally {
+            FileUtils.deleteDirectory(tempDir.toFile());
+        }
+    }
+
+    private KeyframeIndex readKeyframeIndex(String filePath) throws IOException, InterruptedException {
+        // Reads packet headers only, nothing is decoded
+        List<Keyframe> keyframes = new ArrayList<>();
+        int exitCode = run(List.of(
+                resolveExecutable(ffprobePath, "ffprobe"),
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "packet=pts_time,pos,flags",
+                "-of", "csv=p=0",
+                filePath
+        ), line -> {
+            String[] fields = line.split(",");
+            if (fields.length < 3 || !fields[2].startsWith("K")
+                    || fields[0].isEmpty() || "N/A".equals(fields[0]) || "N/A".equals(fields[1])) {
+                return;
+            }
+            keyframes.add(new Keyframe(Double.parseDouble(fields[0]), Long.parseLong(fields[1])));
+        });
+
+        if (exitCode != 0) {
+            log.warn("ffprobe keyframe scan failed with exit code: {}", exitCode);
+            return null;
+        }
+        if (keyframes.isEmpty()) {
+            return null;
+        }
+
+        // Demux order does not guarantee ascending positions, e.g. with edit lists,
+        // and alignChunkEnd binary searches them
+        keyframes.sort(Comparator.comparingLong(Keyframe::getPosition));
+        KeyframeIndex index = new KeyframeIndex(new double[keyframes.size()], new long[keyframes.size()]);
+        for (int i = 0; i < keyframes.size(); i++) {
+            index.times[i] = keyframes.get(i).getTime();
+            index.positions[i] = keyframes.get(i).getPosition();
+        }
+        return index;
+    }
+
+    private void writeKeyframeIndex(Path path, KeyframeIndex index) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(index.times.length);
+            for (int i = 0; i < index.times.length; i++) {
+                out.writeDouble(index.times[i]);
+                out.writeLong(index.positions[i]);
+            }
+        }
+    }
+
+    private KeyframeIndex loadKeyframeIndex(MediaFile mediaFile) {
+        String indexPath = mediaFile.getKeyframeIndexPath();
+        if (indexPath == null) {
+            return null;
+        }
+
+        KeyframeIndex cached = keyframeCache.get(indexPath);
+        if (cached != null) {
+            return cached;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(indexPath))))) {
+            int count = in.readInt();
+            KeyframeIndex index = new KeyframeIndex(new double[count], new long[count]);
+            for (int i = 0; i < count; i++) {
+                index.times[i] = in.readDouble();
+                index.positions[i] = in.readLong();
+            }
+            keyframeCache.put(indexPath, index);
+            return index;
+        } catch (IOException e) {
+            log.warn("Could not read keyframe index: {}", indexPath);
+            return null;
+        }
+    }
+
+    private boolean generateStoryboard(MediaFile mediaFile, KeyframeIndex index, Path storyboardDir)
+            throws IOException, InterruptedException {
+        Double duration = mediaFile.getDurationSeconds();
+        if (duration == null || duration <= 0 || mediaFile.getVideoCodec() == null) {
+            return false;
+        }
+
+        // Decoding only keyframes keeps this fast on long movies, and fps repeats the
+        // nearest one for each slot. When keyframes are further apart than the interval
+        // that shows the same frame on several tiles, so such sources, and sources
+        // without an index, are decoded in full: slower, but every tile is accurate.
+        boolean keyframesOnly = index != null && duration / index.times.length <= storyboardInterval;
+
+        String filter = "fps=1/" + storyboardInterval
+                + ",scale=" + tileWidth + ":" + tileHeight + ":force_original_aspect_ratio=decrease"
+                + ",pad=" + tileWidth + ":" + tileHeight + ":(ow-iw)/2:(oh-ih)/2"
+                + ",tile=" + STORYBOARD_COLUMNS + "x" + STORYBOARD_ROWS;
+        List<String> command = new ArrayList<>(List.of(resolveExecutable(ffmpegPath, "ffmpeg"), "-y"));
+        if (keyframesOnly) {
+            command.addAll(List.of("-skip_frame", "nokey"));
+        }
+        command.addAll(List.of(
+                "-i", mediaFile.getFilePath(),
+                "-vf", filter,
+                "-an",
+                "-q:v", "5",
+                storyboardDir.resolve("sheet-%03d.jpg").toString()
+        ));
+
+        int exitCode = run(command, line -> { });
+        if (exitCode != 0) {
+            log.error("FFmpeg storyboard failed with exit code: {}", exitCode);
+            return false;
+        }
+
+        Files.writeString(storyboardDir.resolve(STORYBOARD_FILE), buildStoryboardVtt(duration), StandardCharsets.UTF_8);
+        log.info("Storyboard generated for: {} ({})", mediaFile.getFileName(),
+                keyframesOnly ? "keyframes only" : "full decode");
+        return true;
+    }
+
+    private String buildStoryboardVtt(double duration) {
+        int framesPerSheet = STORYBOARD_COLUMNS * STORYBOARD_ROWS;
+        int frames = (int) Math.ceil(duration / storyboardInterval);
+
+        StringBuilder vtt = new StringBuilder("WEBVTT\n");
+        for (int frame = 0; frame < frames; frame++) {
+            int sheet = frame / framesPerSheet + 1;
+            int tile = frame % framesPerSheet;
+            int x = (tile % STORYBOARD_COLUMNS) * tileWidth;
+            int y = (tile / STORYBOARD_COLUMNS) * tileHeight;
+            double start = (double) frame * storyboardInterval;
+            double end = Math.min(duration, start + storyboardInterval);
+
+            // Relative to /api/files/{id}/storyboard.vtt
+            vtt.append('\n')
+                    .append(formatTimestamp(start)).append(" --> ").append(formatTimestamp(end)).append('\n')
+                    .append("storyboard/").append(sheet).append(".jpg#xywh=")
+                    .append(x).append(',').append(y).append(',').append(tileWidth).append(',').append(tileHeight)
+                    .append('\n');
+        }
+        return vtt.toString();
+    }
+
+    private String formatTimestamp(double seconds) {
+        long millis = Math.round(seconds * 1000);
+        return String.format("%02d:%02d:%02d.%03d",
+                millis / 3_600_000, (millis / 60_000) % 60, (millis / 1000) % 60, millis % 1000);
+    }
+
+    private String sheetFileName(int sheet) {
+        return String.format("sheet-%03d.jpg", sheet);
+    }
+
+    private void copyMetadata(MediaFile source, MediaFile target) {
+        target.setDurationSeconds(source.getDurationSeconds());
+        target.setVideoWidth(source.getVideoWidth());
+        target.setVideoHeight(source.getVideoHeight());
+        target.setVideoCodec(source.getVideoCodec());
+        target.setAudioCodec(source.getAudioCodec());
+        target.setKeyframeIndexPath(source.getKeyframeIndexPath());
+        target.setStoryboardPath(source.getStoryboardPath());
+    }
+
+    private int run(List<String> command, Consumer<String> lineConsumer) throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = processBuilder.start();
+
+        // Drain stdout as it comes so the process never blocks on a full pipe
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineConsumer.accept(line);
+            }
+        }
+        return process.waitFor();
+    }
+
+    private String resolveExecutable(String configuredPath, String fallback) {
+        if (!new File(configuredPath).exists()) {
+            log.warn("{} not found at: {}. Trying system {}.", fallback, configuredPath, fallback);
+            return fallback; // Try system PATH
+        }
+        return configuredPath;
+    }
+
+    private Resource toResource(Path path) throws IOException {
+        Resource resource = new UrlResource(path.toUri());
+        if (resource.exists() && resource.isReadable()) {
+            return resource;
+        } else {
+            throw new IOException("File not found: " + path);
+        }
+    }
+
+    private static class KeyframeIndex {
+        private final double[] times;
+        private final long[] positions;
+
+        private KeyframeIndex(double[] times, long[] positions) {
+            this.times = times;
+            this.positions = positions;
+        }
+    }
+}
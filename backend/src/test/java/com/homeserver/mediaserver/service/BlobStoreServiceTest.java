@@ -0,0 +1,184 @@
+package com.homeserver.mediaserver.service;
+
+import com.homeserver.mediaserver.entity.MediaBlob;
+import com.homeserver.mediaserver.repository.MediaBlobRepository;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlobStoreServiceTest {
+
+    @Mock
+    private MediaBlobRepository mediaBlobRepository;
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private BlobStoreService blobStoreService;
+
+    // In-memory media_blobs table behind the repository mock
+    private final Map<Long, MediaBlob> blobs = new HashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        blobStoreService = new BlobStoreService(mediaBlobRepository, mediaFileRepository);
+        ReflectionTestUtils.setField(blobStoreService, "blobBasePath", tempDir.resolve("blobs").toString());
+
+        lenient().when(mediaBlobRepository.save(any(MediaBlob.class))).thenAnswer(invocation -> {
+            MediaBlob blob = invocation.getArgument(0);
+            if (blob.getId() == null) {
+                blob.setId(ids.incrementAndGet());
+            }
+            blobs.put(blob.getId(), blob);
+            return blob;
+        });
+        lenient().when(mediaBlobRepository.findByChecksum(anyString())).thenAnswer(invocation ->
+                blobs.values().stream()
+                        .filter(blob -> blob.getChecksum().equals(invocation.getArgument(0)))
+                        .findFirst());
+        lenient().when(mediaBlobRepository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(blobs.get(invocation.<Long>getArgument(0))));
+        lenient().doAnswer(invocation -> blobs.remove(invocation.<MediaBlob>getArgument(0).getId()))
+                .when(mediaBlobRepository).delete(any(MediaBlob.class));
+    }
+
+    @Test
+    void storeSameContentTwiceSharesOneBlob() throws IOException {
+        MediaBlob first = store("same content");
+        MediaBlob second = store("same content");
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(1, blobs.size());
+        assertEquals("same content", Files.readString(Paths.get(first.getBlobPath())));
+    }
+
+    @Test
+    void removeReferenceKeepsBlobWhileOtherRowsReferenceIt() throws IOException {
+        MediaBlob blob = store("shared");
+        blobStoreService.commit(blob);
+        Path link = tempDir.resolve("videos-film.mkv");
+        blobStoreService.link(blob, link);
+        when(mediaFileRepository.countByBlobId(blob.getId())).thenReturn(1L);
+
+        blobStoreService.removeReference(blob.getId(), link);
+
+        assertFalse(Files.exists(link));
+        assertTrue(Files.exists(Paths.get(blob.getBlobPath())));
+        assertTrue(blobs.containsKey(blob.getId()));
+    }
+
+    @Test
+    void removeReferenceDeletesBlobAndThumbnailWithLastReference() throws IOException {
+        MediaBlob blob = store("last");
+        blobStoreService.commit(blob);
+        Path thumbnail = Files.writeString(tempDir.resolve("thumb.jpg"), "thumbnail");
+        blobStoreService.setThumbnail(blob.getId(), thumbnail.toString());
+        Path link = tempDir.resolve("movies-film.mkv");
+        blobStoreService.link(blob, link);
+        when(mediaFileRepository.countByBlobId(blob.getId())).thenReturn(0L);
+
+        blobStoreService.removeReference(blob.getId(), link);
+
+        assertFalse(Files.exists(link));
+        assertFalse(Files.exists(Paths.get(blob.getBlobPath())));
+        assertFalse(Files.exists(thumbnail));
+        assertTrue(blobs.isEmpty());
+    }
+
+    @Test
+    void abortDeletesBlobAndLinkOfFailedUpload() throws IOException {
+        MediaBlob blob = store("failed upload");
+        Path link = tempDir.resolve("images-photo.jpg");
+        blobStoreService.link(blob, link);
+
+        blobStoreService.abort(blob, link);
+
+        assertFalse(Files.exists(link));
+        assertFalse(Files.exists(Paths.get(blob.getBlobPath())));
+        assertTrue(blobs.isEmpty());
+    }
+
+    @Test
+    void abortKeepsBlobWhileAnotherUploadIsPending() throws IOException {
+        MediaBlob first = store("concurrent");
+        MediaBlob second = store("concurrent");
+
+        blobStoreService.abort(first, null);
+        assertTrue(Files.exists(Paths.get(second.getBlobPath())));
+
+        blobStoreService.abort(second, null);
+        assertFalse(Files.exists(Paths.get(second.getBlobPath())));
+    }
+
+    @Test
+    void abortKeepsBlobReferencedBySavedRows() throws IOException {
+        MediaBlob saved = store("re-upload");
+        blobStoreService.commit(saved);
+        MediaBlob failed = store("re-upload");
+        when(mediaFileRepository.countByBlobId(saved.getId())).thenReturn(1L);
+
+        blobStoreService.abort(failed, null);
+
+        assertTrue(Files.exists(Paths.get(saved.getBlobPath())));
+    }
+
+    @Test
+    void deleteUnreferencedSkipsPendingBlobs() throws IOException {
+        MediaBlob pending = store("pending");
+        MediaBlob orphan = store("orphan");
+        blobStoreService.commit(orphan);
+        when(mediaBlobRepository.findUnreferenced()).thenReturn(List.of(pending, orphan));
+
+        assertEquals(1, blobStoreService.deleteUnreferenced());
+        assertTrue(Files.exists(Paths.get(pending.getBlobPath())));
+        assertFalse(Files.exists(Paths.get(orphan.getBlobPath())));
+    }
+
+    @Test
+    void linkGivesEachMediaFileItsOwnPath() throws IOException {
+        MediaBlob blob = store("linked");
+        Path first = tempDir.resolve("first.mkv");
+        Path second = tempDir.resolve("second.mkv");
+
+        blobStoreService.link(blob, first);
+        blobStoreService.link(blob, second);
+
+        assertEquals("linked", Files.readString(first));
+        assertEquals("linked", Files.readString(second));
+        assertNotEquals(first, second);
+    }
+
+    private MediaBlob store(String content) throws IOException {
+        return blobStoreService.store(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
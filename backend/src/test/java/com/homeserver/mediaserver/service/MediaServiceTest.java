@@ -0,0 +1,139 @@
+package com.homeserver.mediaserver.service;
+
+import com.homeserver.mediaserver.dto.UploadResponse;
+import com.homeserver.mediaserver.entity.MediaBlob;
+import com.homeserver.mediaserver.entity.MediaFile;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MediaServiceTest {
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @Mock
+    private BlobStoreService blobStoreService;
+
+    @Mock
+    private VideoMetadataService videoMetadataService;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @InjectMocks
+    private MediaService mediaService;
+
+    @TempDir
+    Path tempDir;
+
+    private final MediaBlob blob = new MediaBlob();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(mediaService, "mediaBasePath", tempDir.toString());
+        ReflectionTestUtils.setField(mediaService, "mediaFolders", List.of("images", "videos"));
+
+        blob.setId(1L);
+        blob.setChecksum("checksum");
+        blob.setSize(7L);
+        when(blobStoreService.store(any())).thenReturn(blob);
+        lenient().doAnswer(invocation -> Files.writeString(invocation.<Path>getArgument(1), "content"))
+                .when(blobStoreService).link(any(), any());
+        lenient().when(mediaFileRepository.save(any(MediaFile.class))).thenAnswer(invocation -> {
+            MediaFile mediaFile = invocation.getArgument(0);
+            mediaFile.setId(10L);
+            return mediaFile;
+        });
+    }
+
+    @Test
+    void duplicateNameWithoutExtensionGetsACounter() throws IOException {
+        Path existing = Files.writeString(Files.createDirectories(tempDir.resolve("images")).resolve("README"), "first");
+
+        UploadResponse response = mediaService.uploadFile(upload("README"), "images");
+
+        assertTrue(response.isSuccess());
+        assertEquals("README_1", response.getFile().getFileName());
+        assertEquals("first", Files.readString(existing));
+        verify(blobStoreService).commit(blob);
+    }
+
+    @Test
+    void duplicateNameKeepsItsExtension() throws IOException {
+        Path images = Files.createDirectories(tempDir.resolve("images"));
+        Files.writeString(images.resolve("photo.jpg"), "first");
+        Files.writeString(images.resolve("photo_1.jpg"), "second");
+
+        UploadResponse response = mediaService.uploadFile(upload("photo.jpg"), "images");
+
+        assertEquals("photo_2.jpg", response.getFile().getFileName());
+    }
+
+    @Test
+    void failedSaveDeletesOnlyItsOwnLink() throws IOException {
+        Path existing = Files.writeString(Files.createDirectories(tempDir.resolve("images")).resolve("README"), "first");
+        when(mediaFileRepository.save(any(MediaFile.class))).thenThrow(new IllegalStateException("database down"));
+
+        assertThrows(IllegalStateException.class, () -> mediaService.uploadFile(upload("README"), "images"));
+
+        verify(blobStoreService).abort(blob, tempDir.resolve("images").resolve("README_1"));
+        verify(blobStoreService, never()).commit(any());
+        assertEquals("first", Files.readString(existing));
+    }
+
+    @Test
+    void failureBeforeLinkingDeletesNoFile() throws IOException {
+        Files.writeString(Files.createDirectories(tempDir.resolve("images")).resolve("README"), "first");
+        doAnswer(invocation -> {
+            throw new IOException("disk full");
+        }).when(blobStoreService).link(any(), any());
+
+        assertThrows(IOException.class, () -> mediaService.uploadFile(upload("README"), "images"));
+
+        verify(blobStoreService).abort(any(MediaBlob.class), isNull());
+    }
+
+    @Test
+    void missingFileNameReleasesTheReference() throws IOException {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+
+        assertThrows(NullPointerException.class, () -> mediaService.uploadFile(file, "images"));
+
+        verify(blobStoreService).abort(any(MediaBlob.class), isNull());
+    }
+
+    private MockMultipartFile upload(String fileName) {
+        return new MockMultipartFile("file", fileName, "text/plain", "content".getBytes());
+    }
+}
@@ -0,0 +1,120 @@
+package com.homeserver.mediaserver.service;
+
+import com.homeserver.mediaserver.dto.SpriteSheetDTO;
+import com.homeserver.mediaserver.entity.MediaFile;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class SpriteServiceTest {
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private SpriteService spriteService;
+
+    // Current catalog page behind the repository mock
+    private final List<MediaFile> files = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        spriteService = new SpriteService(mediaFileRepository);
+        ReflectionTestUtils.setField(spriteService, "thumbnailBasePath", tempDir.toString());
+        ReflectionTestUtils.setField(spriteService, "thumbnailWidth", 32);
+        ReflectionTestUtils.setField(spriteService, "thumbnailHeight", 24);
+        ReflectionTestUtils.setField(spriteService, "mediaFolders", List.of("images", "movies"));
+        ReflectionTestUtils.setField(spriteService, "spriteColumns", 10);
+        ReflectionTestUtils.setField(spriteService, "spritePageSize", 50);
+
+        lenient().when(mediaFileRepository.findAllBy(any(Pageable.class))).thenAnswer(invocation -> List.copyOf(files));
+    }
+
+    @Test
+    void sheetHasATilePerThumbnail() throws IOException {
+        addFile(1L);
+        addFile(2L);
+
+        SpriteSheetDTO sheet = spriteService.getSpriteSheet(null, 0, 50);
+
+        assertEquals(2, sheet.getTiles().size());
+        assertTrue(spriteService.getSpriteImage(sheet).exists());
+    }
+
+    @Test
+    void previousVersionIsServedAndOlderOnesAreDeleted() throws IOException {
+        addFile(1L);
+        String first = spriteService.getSpriteSheet(null, 0, 50).getVersion();
+        addFile(2L);
+        String second = spriteService.getSpriteSheet(null, 0, 50).getVersion();
+
+        assertTrue(spriteService.getSpriteImage(null, 0, 50, first).exists());
+
+        addFile(3L);
+        String third = spriteService.getSpriteSheet(null, 0, 50).getVersion();
+
+        assertThrows(IOException.class, () -> spriteService.getSpriteImage(null, 0, 50, first));
+        assertTrue(spriteService.getSpriteImage(null, 0, 50, second).exists());
+        assertTrue(spriteService.getSpriteImage(null, 0, 50, third).exists());
+        try (var sprites = Files.list(tempDir.resolve("sprites"))) {
+            assertEquals(2, sprites.count());
+        }
+    }
+
+    @Test
+    void currentVersionIsBuiltOnRequest() throws IOException {
+        addFile(1L);
+        String version = spriteService.getSpriteSheet(null, 0, 50).getVersion();
+        spriteService.clearSprites();
+
+        assertTrue(spriteService.getSpriteImage(null, 0, 50, version).exists());
+    }
+
+    @Test
+    void clearSpritesDeletesVersionsOfEarlierRuns() throws IOException {
+        Path stale = Files.createDirectories(tempDir.resolve("sprites")).resolve("all-0-50-0123456789abcdef.jpg");
+        Files.writeString(stale, "stale");
+
+        spriteService.clearSprites();
+
+        assertFalse(Files.exists(stale));
+    }
+
+    @Test
+    void otherPageSizesAndMalformedVersionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> spriteService.getSpriteSheet(null, 0, 20));
+        assertThrows(IllegalArgumentException.class, () -> spriteService.getSpriteSheet("unknown", 0, 50));
+        assertThrows(IllegalArgumentException.class, () -> spriteService.getSpriteImage(null, 0, 50, "../../etc"));
+    }
+
+    private void addFile(Long id) throws IOException {
+        Path thumbnail = tempDir.resolve(id + ".jpg");
+        ImageIO.write(new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB), "jpg", thumbnail.toFile());
+
+        MediaFile file = new MediaFile();
+        file.setId(id);
+        file.setThumbnailPath(thumbnail.toString());
+        files.add(0, file);
+    }
+}
@@ -0,0 +1,99 @@
+package com.homeserver.mediaserver.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ThumbnailService thumbnailService;
+
+    @BeforeEach
+    void setUp() {
+        thumbnailService = new ThumbnailService();
+        ReflectionTestUtils.setField(thumbnailService, "thumbnailBasePath", tempDir.resolve("thumbnails").toString());
+        ReflectionTestUtils.setField(thumbnailService, "thumbnailWidth", 320);
+        ReflectionTestUtils.setField(thumbnailService, "thumbnailHeight", 240);
+        ReflectionTestUtils.setField(thumbnailService, "decodeBudgetMb", 192);
+        thumbnailService.init();
+    }
+
+    @Test
+    void panoramaIsSubsampledByItsLongEdge() {
+        // 100000 / (2 * 320) = 156.25
+        assertEquals(156, thumbnailService.calculateSubsampling(100000, 1000, false));
+    }
+
+    @Test
+    void quarterTurnSwapsTheBoxEdges() {
+        // Upright the tall edge meets the 240 box edge, turned it meets the 320 one
+        assertEquals(208, thumbnailService.calculateSubsampling(1000, 100000, false));
+        assertEquals(156, thumbnailService.calculateSubsampling(1000, 100000, true));
+    }
+
+    @Test
+    void smallImageIsNotSubsampled() {
+        assertEquals(1, thumbnailService.calculateSubsampling(400, 300, false));
+    }
+
+    @Test
+    void decodePermitsCoverTheDecodedRaster() throws IOException {
+        // 1024 x 1024 x 4 bytes, twice with a reoriented copy
+        assertEquals(4, thumbnailService.calculateDecodePermits(1024, 1024, false));
+        assertEquals(8, thumbnailService.calculateDecodePermits(1024, 1024, true));
+        assertEquals(1, thumbnailService.calculateDecodePermits(1, 1, false));
+    }
+
+    @Test
+    void decodeOverTheBudgetIsRejected() {
+        // 10000 x 10000 x 4 bytes is about 382 MB
+        assertThrows(IOException.class, () -> thumbnailService.calculateDecodePermits(10000, 10000, false));
+    }
+
+    @Test
+    void imageThumbnailFitsTheBox() throws IOException {
+        Path image = writeImage(2000, 1500);
+
+        String thumbnail = thumbnailService.generateThumbnail(image.toString(), "image/png");
+
+        assertNotNull(thumbnail);
+        BufferedImage result = ImageIO.read(Paths.get(thumbnail).toFile());
+        assertEquals(320, result.getWidth());
+        assertEquals(240, result.getHeight());
+    }
+
+    @Test
+    void imageOverTheBudgetGetsNoThumbnail() throws IOException {
+        ReflectionTestUtils.setField(thumbnailService, "decodeBudgetMb", 1);
+        thumbnailService.init();
+        Path image = writeImage(2000, 1500);
+
+        assertNull(thumbnailService.generateThumbnail(image.toString(), "image/png"));
+    }
+
+    @Test
+    void unreadableImageGetsNoThumbnail() throws IOException {
+        Path image = Files.writeString(tempDir.resolve("broken.png"), "not an image");
+
+        assertNull(thumbnailService.generateThumbnail(image.toString(), "image/png"));
+    }
+
+    private Path writeImage(int width, int height) throws IOException {
+        Path path = tempDir.resolve("source.png");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+        return path;
+    }
+}
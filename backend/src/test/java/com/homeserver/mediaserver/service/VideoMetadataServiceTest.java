@@ -0,0 +1,127 @@
+package com.homeserver.mediaserver.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homeserver.mediaserver.dto.Keyframe;
+import com.homeserver.mediaserver.entity.MediaFile;
+import com.homeserver.mediaserver.repository.MediaFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class VideoMetadataServiceTest {
+
+    private static final long MB = 1 << 20;
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+
+    @Mock
+    private BlobStoreService blobStoreService;
+
+    @TempDir
+    Path tempDir;
+
+    private VideoMetadataService videoMetadataService;
+
+    private MediaFile mediaFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        videoMetadataService = new VideoMetadataService(mediaFileRepository, blobStoreService, new ObjectMapper());
+        ReflectionTestUtils.setField(videoMetadataService, "thumbnailBasePath", tempDir.resolve("thumbnails").toString());
+        ReflectionTestUtils.setField(videoMetadataService, "streamChunkSizeMb", 8);
+        ReflectionTestUtils.setField(videoMetadataService, "storyboardInterval", 10);
+        ReflectionTestUtils.setField(videoMetadataService, "tileWidth", 160);
+        ReflectionTestUtils.setField(videoMetadataService, "tileHeight", 90);
+
+        // ffprobe prints keyframes out of position order, as demuxing an edit list can
+        ReflectionTestUtils.setField(videoMetadataService, "ffprobePath", script("ffprobe",
+                "case \"$*\" in",
+                "  *-show_format*) echo '{\"format\":{\"duration\":\"30.0\"},"
+                        + "\"streams\":[{\"codec_type\":\"video\",\"codec_name\":\"h264\",\"width\":1920,\"height\":1080}]}' ;;",
+                "  *) printf '0.000000,48,K_\\n1.000000,5000,__\\n20.000000,20971520,K_\\n10.000000,9437184,K_\\n50.000000,62914560,K_\\n' ;;",
+                "esac").toString());
+        // No storyboard, the index is still written
+        ReflectionTestUtils.setField(videoMetadataService, "ffmpegPath", script("ffmpeg", "exit 1").toString());
+
+        mediaFile = new MediaFile();
+        mediaFile.setId(1L);
+        mediaFile.setFileName("film.mkv");
+        mediaFile.setFilePath(tempDir.resolve("film.mkv").toString());
+        mediaFile.setChecksum("abc123");
+        lenient().when(mediaFileRepository.findById(1L)).thenReturn(Optional.of(mediaFile));
+        lenient().when(mediaFileRepository.save(any(MediaFile.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void keyframeIndexIsWrittenNextToTheStoryboard() {
+        assertTrue(videoMetadataService.extractMetadata(1L));
+
+        assertEquals(30.0, mediaFile.getDurationSeconds());
+        assertEquals("h264", mediaFile.getVideoCodec());
+        assertNull(mediaFile.getStoryboardPath());
+        assertEquals(tempDir.resolve("thumbnails/storyboards/abc123/keyframes.idx").toString(),
+                mediaFile.getKeyframeIndexPath());
+        assertTrue(Files.exists(Path.of(mediaFile.getKeyframeIndexPath())));
+    }
+
+    @Test
+    void keyframesAreListedByTime() {
+        videoMetadataService.extractMetadata(1L);
+
+        List<Double> times = videoMetadataService.getKeyframes(mediaFile).stream()
+                .map(Keyframe::getTime)
+                .collect(Collectors.toList());
+        assertEquals(List.of(0.0, 10.0, 20.0, 50.0), times);
+    }
+
+    @Test
+    void chunkEndsBeforeTheNextKeyframeByPosition() {
+        videoMetadataService.extractMetadata(1L);
+
+        // The plain 8 MB chunk is stretched to the keyframe at 9 MB
+        assertEquals(9 * MB - 1, videoMetadataService.alignChunkEnd(mediaFile, 0, 100 * MB));
+        assertEquals(20 * MB - 1, videoMetadataService.alignChunkEnd(mediaFile, 9 * MB, 100 * MB));
+    }
+
+    @Test
+    void chunkIsNotStretchedOverASparseIndex() {
+        videoMetadataService.extractMetadata(1L);
+
+        // The next keyframe at 60 MB is more than a chunk past the plain end
+        assertEquals(28 * MB - 1, videoMetadataService.alignChunkEnd(mediaFile, 20 * MB, 100 * MB));
+        // Past the last keyframe the chunk stays plain
+        assertEquals(68 * MB - 1, videoMetadataService.alignChunkEnd(mediaFile, 60 * MB, 100 * MB));
+        assertEquals(64 * MB - 1, videoMetadataService.alignChunkEnd(mediaFile, 60 * MB, 64 * MB));
+    }
+
+    @Test
+    void videoWithoutIndexServesPlainChunks() {
+        assertEquals(8 * MB - 1, videoMetadataService.alignChunkEnd(mediaFile, 0, 100 * MB));
+        assertTrue(videoMetadataService.getKeyframes(mediaFile).isEmpty());
+    }
+
+    private Path script(String name, String... lines) throws IOException {
+        Path script = tempDir.resolve(name);
+        Files.writeString(script, "#!/bin/sh\n" + String.join("\n", lines) + "\n");
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-xr-x"));
+        return script;
+    }
+}
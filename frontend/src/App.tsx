@@ -141,7 +141,12 @@ function HomePage() {
               </p>
             </motion.div>
 
-            <MediaGrid files={filteredFiles} onPlayVideo={setSelectedVideo} onDelete={loadFiles} />
+            <MediaGrid
+              files={filteredFiles}
+              onPlayVideo={setSelectedVideo}
+              onDelete={loadFiles}
+              useSprites={!searchQuery.trim()}
+            />
           </>
         )}
       </main>
@@ -243,7 +248,13 @@ function CategoryPage({ categoryId }: { categoryId: string }) {
             <div className="animate-spin rounded-full h-12 w-12 border-b-2 border-primary"></div>
           </div>
         ) : (
-          <MediaGrid files={files} onPlayVideo={setSelectedVideo} onDelete={loadCategoryFiles} />
+          <MediaGrid
+            files={files}
+            onPlayVideo={setSelectedVideo}
+            onDelete={loadCategoryFiles}
+            useSprites
+            category={categoryId}
+          />
         )}
       </main>
 
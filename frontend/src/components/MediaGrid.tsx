@@ -1,7 +1,7 @@
-import React, { useState } from 'react';
+import React, { useEffect, useRef, useState } from 'react';
 import { motion } from 'framer-motion';
 import { Download, Play, Image as ImageIcon, FileVideo, Trash2, Film, Tv, Video } from 'lucide-react';
-import { MediaFile, mediaApi } from '@/lib/api';
+import { MediaFile, SpriteSheet, SPRITE_PAGE_SIZE, mediaApi } from '@/lib/api';
 import { Button } from './ui/Button';
 import { Card, CardContent } from './ui/Card';
 import { formatFileSize, formatDate } from '@/lib/utils';
@@ -10,10 +10,50 @@ interface MediaGridProps {
   files: MediaFile[];
   onPlayVideo?: (file: MediaFile) => void;
   onDelete?: () => void;
+  // Load thumbnails from sprite sheets; files must be the full catalog listing for this category
+  useSprites?: boolean;
+  category?: string;
 }
 
-export const MediaGrid: React.FC<MediaGridProps> = ({ files, onPlayVideo, onDelete }) => {
+export const MediaGrid: React.FC<MediaGridProps> = ({ files, onPlayVideo, onDelete, useSprites = false, category }) => {
   const [deleting, setDeleting] = useState<number | null>(null);
+  const [spriteSheets, setSpriteSheets] = useState<SpriteSheet[]>([]);
+  const [spritesPending, setSpritesPending] = useState(useSprites);
+  // Sheet versions whose failed image already triggered a map refresh
+  const refreshedSheets = useRef(new Set<string>());
+
+  useEffect(() => {
+    if (!useSprites || files.length === 0) {
+      setSpriteSheets([]);
+      setSpritesPending(false);
+      return;
+    }
+
+    let cancelled = false;
+    setSpritesPending(true);
+    const pages = Math.ceil(files.length / SPRITE_PAGE_SIZE);
+    Promise.all(
+      Array.from({ length: pages }, (_, page) => mediaApi.getSpriteSheet(category, page))
+    )
+      .then((sheets) => {
+        if (!cancelled) {
+          setSpriteSheets(sheets);
+          setSpritesPending(false);
+        }
+      })
+      .catch((error) => {
+        // Fall back to individual thumbnails
+        console.error('Error loading sprite sheets:', error);
+        if (!cancelled) {
+          setSpriteSheets([]);
+          setSpritesPending(false);
+        }
+      });
+
+    return () => {
+      cancelled = true;
+    };
+  }, [files, useSprites, category]);
   
   const getCategoryInfo = (category: string) => {
     switch (category) {
@@ -52,8 +92,40 @@ export const MediaGrid: React.FC<MediaGridProps> = ({ files, onPlayVideo, onDele
     }
   };
 
+  // The server dropped this sheet version, fetch the current map of its page
+  const refreshSpriteSheet = (failed: SpriteSheet) => {
+    const failedKey = `${failed.page}:${failed.version}`;
+    if (refreshedSheets.current.has(failedKey)) {
+      return;
+    }
+    refreshedSheets.current.add(failedKey);
+
+    mediaApi.getSpriteSheet(category, failed.page)
+      .then((sheet) => {
+        setSpriteSheets((sheets) => sheet.version === failed.version
+          // Same version failing again, fall back to individual thumbnails
+          ? sheets.filter((current) => current !== failed)
+          : sheets.map((current) => (current === failed ? sheet : current)));
+      })
+      .catch((error) => {
+        console.error('Error refreshing sprite sheet:', error);
+        setSpriteSheets((sheets) => sheets.filter((current) => current !== failed));
+      });
+  };
+
+  const getSpriteTile = (file: MediaFile) => {
+    for (const sheet of spriteSheets) {
+      const tile = sheet.tiles[file.id];
+      if (tile) {
+        return { sheet, tile };
+      }
+    }
+    return undefined;
+  };
+
   const getThumbnail = (file: MediaFile) => {
-    if (file.thumbnailPath) {
+    // Wait for the sprite map instead of requesting every thumbnail up front
+    if (file.thumbnailPath && !spritesPending) {
       return mediaApi.getThumbnailUrl(file.thumbnailPath);
     }
     return undefined;
@@ -64,6 +136,7 @@ export const MediaGrid: React.FC<MediaGridProps> = ({ files, onPlayVideo, onDele
       {files.map((file, index) => {
         const categoryInfo = getCategoryInfo(file.category);
         const CategoryIcon = categoryInfo.icon;
+        const sprite = getSpriteTile(file);
         
         return (
         <motion.div
@@ -80,7 +153,22 @@ export const MediaGrid: React.FC<MediaGridProps> = ({ files, onPlayVideo, onDele
                 {categoryInfo.name}
               </div>
               
-              {file.thumbnailPath ? (
+              {sprite ? (
+                <svg
+                  viewBox={`${sprite.tile.x} ${sprite.tile.y} ${sprite.tile.width} ${sprite.tile.height}`}
+                  preserveAspectRatio="xMidYMid slice"
+                  className="w-full h-full"
+                  role="img"
+                  aria-label={file.fileName}
+                >
+                  <image
+                    href={mediaApi.getSpriteUrl(sprite.sheet)}
+                    width={sprite.sheet.width}
+                    height={sprite.sheet.height}
+                    onError={() => refreshSpriteSheet(sprite.sheet)}
+                  />
+                </svg>
+              ) : getThumbnail(file) ? (
                 <img
                   src={getThumbnail(file)}
                   alt={file.fileName}
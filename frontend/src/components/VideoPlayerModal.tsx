@@ -1,8 +1,8 @@
-import React from 'react';
+import React, { useEffect, useRef, useState } from 'react';
 import { motion, AnimatePresence } from 'framer-motion';
 import ReactPlayer from 'react-player';
 import { X } from 'lucide-react';
-import { MediaFile, mediaApi } from '@/lib/api';
+import { MediaFile, StoryboardCue, mediaApi } from '@/lib/api';
 import { Button } from './ui/Button';
 
 interface VideoPlayerModalProps {
@@ -10,9 +10,68 @@ interface VideoPlayerModalProps {
   onClose: () => void;
 }
 
+const formatTime = (seconds: number) => {
+  const total = Math.max(0, Math.floor(seconds));
+  const h = Math.floor(total / 3600);
+  const m = Math.floor((total % 3600) / 60);
+  const s = total % 60;
+  const mm = h > 0 ? String(m).padStart(2, '0') : String(m);
+  return `${h > 0 ? `${h}:` : ''}${mm}:${String(s).padStart(2, '0')}`;
+};
+
 export const VideoPlayerModal: React.FC<VideoPlayerModalProps> = ({ file, onClose }) => {
+  const playerRef = useRef<ReactPlayer>(null);
+  const [cues, setCues] = useState<StoryboardCue[]>([]);
+  const [keyframeTimes, setKeyframeTimes] = useState<number[]>([]);
+  const [played, setPlayed] = useState(0);
+  const [hoverTime, setHoverTime] = useState<number | null>(null);
+
+  useEffect(() => {
+    setCues([]);
+    setKeyframeTimes([]);
+    setPlayed(0);
+    setHoverTime(null);
+    if (!file || !file.storyboardAvailable) {
+      return;
+    }
+
+    let cancelled = false;
+    mediaApi.getStoryboard(file.id)
+      .then((data) => !cancelled && setCues(data))
+      .catch((error) => console.error('Error loading storyboard:', error));
+    mediaApi.getKeyframes(file.id)
+      .then((data) => !cancelled && setKeyframeTimes(data.map((keyframe) => keyframe.time)))
+      .catch((error) => console.error('Error loading keyframes:', error));
+
+    return () => {
+      cancelled = true;
+    };
+  }, [file]);
+
   if (!file) return null;
 
+  const duration = file.durationSeconds ?? 0;
+
+  const timeAt = (event: React.MouseEvent<HTMLDivElement>) => {
+    const rect = event.currentTarget.getBoundingClientRect();
+    const fraction = Math.min(1, Math.max(0, (event.clientX - rect.left) / rect.width));
+    return fraction * duration;
+  };
+
+  // Seek to the last keyframe at or before the target so playback resumes without decoding up to it
+  const alignToKeyframe = (time: number) => {
+    let aligned = time;
+    for (const keyframeTime of keyframeTimes) {
+      if (keyframeTime > time) break;
+      aligned = keyframeTime;
+    }
+    return aligned;
+  };
+
+  const hoverCue = hoverTime !== null
+    ? cues.find((cue) => hoverTime >= cue.start && hoverTime < cue.end)
+    : undefined;
+
   return (
     <AnimatePresence>
       {file && (
@@ -43,11 +102,13 @@ export const VideoPlayerModal: React.FC<VideoPlayerModalProps> = ({ file, onClos
 
             <div className="aspect-video bg-black">
               <ReactPlayer
+                ref={playerRef}
                 url={mediaApi.getStreamUrl(file.filePath)}
                 controls
                 playing
                 width="100%"
                 height="100%"
+                onProgress={({ playedSeconds }) => setPlayed(playedSeconds)}
                 config={{
                   file: {
                     attributes: {
@@ -58,11 +119,54 @@ export const VideoPlayerModal: React.FC<VideoPlayerModalProps> = ({ file, onClos
               />
             </div>
 
+            {duration > 0 && cues.length > 0 && (
+              <div className="px-6 pt-4">
+                <div
+                  className="relative h-2 rounded-full bg-muted cursor-pointer"
+                  onMouseMove={(e) => setHoverTime(timeAt(e))}
+                  onMouseLeave={() => setHoverTime(null)}
+                  onClick={(e) => playerRef.current?.seekTo(alignToKeyframe(timeAt(e)), 'seconds')}
+                >
+                  <div
+                    className="absolute inset-y-0 left-0 rounded-full bg-primary"
+                    style={{ width: `${(played / duration) * 100}%` }}
+                  />
+
+                  {hoverTime !== null && hoverCue && (
+                    <div
+                      className="absolute bottom-4 -translate-x-1/2 pointer-events-none flex flex-col items-center"
+                      style={{ left: `${(hoverTime / duration) * 100}%` }}
+                    >
+                      <div
+                        className="rounded border border-white/50 shadow-lg"
+                        style={{
+                          width: hoverCue.width,
+                          height: hoverCue.height,
+                          backgroundImage: `url(${hoverCue.url.split('#')[0]})`,
+                          backgroundPosition: `-${hoverCue.x}px -${hoverCue.y}px`,
+                        }}
+                      />
+                      <span className="mt-1 rounded bg-black/70 px-1 text-xs text-white">
+                        {formatTime(hoverTime)}
+                      </span>
+                    </div>
+                  )}
+                </div>
+              </div>
+            )}
+
             <div className="p-6">
               <h2 className="text-2xl font-bold mb-2">{file.fileName}</h2>
               <div className="flex gap-4 text-sm text-muted-foreground">
                 <span>Type: {file.mimeType}</span>
                 <span>Category: {file.category}</span>
+                {duration > 0 && <span>Duration: {formatTime(duration)}</span>}
+                {file.videoWidth && file.videoHeight && (
+                  <span>Resolution: {file.videoWidth}x{file.videoHeight}</span>
+                )}
+                {file.videoCodec && (
+                  <span>Codec: {file.videoCodec}{file.audioCodec ? ` / ${file.audioCodec}` : ''}</span>
+                )}
               </div>
             </div>
           </motion.div>
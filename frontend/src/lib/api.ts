@@ -12,8 +12,87 @@ export interface MediaFile {
   category: string;
   uploadedAt: string;
   modifiedAt: string;
+  durationSeconds: number | null;
+  videoWidth: number | null;
+  videoHeight: number | null;
+  videoCodec: string | null;
+  audioCodec: string | null;
+  storyboardAvailable: boolean;
 }
 
+export interface Keyframe {
+  time: number;
+  position: number;
+}
+
+export interface StoryboardCue {
+  start: number;
+  end: number;
+  url: string;
+  x: number;
+  y: number;
+  width: number;
+  height: number;
+}
+
+export interface SpriteTile {
+  x: number;
+  y: number;
+  width: number;
+  height: number;
+}
+
+export interface SpriteSheet {
+  category: string | null;
+  page: number;
+  size: number;
+  version: string;
+  width: number;
+  height: number;
+  tiles: Record<number, SpriteTile>;
+}
+
+// Must match app.media.sprite-page-size on the server
+export const SPRITE_PAGE_SIZE = 50;
+
+const parseVttTime = (value: string): number => {
+  const parts = value.trim().split(':').map(Number);
+  return parts.reduce((total, part) => total * 60 + part, 0);
+};
+
+// Parses a storyboard WebVTT file whose cues point at sprite regions (url#xywh=x,y,w,h)
+const parseStoryboardVtt = (text: string, baseUrl: string): StoryboardCue[] => {
+  const cues: StoryboardCue[] = [];
+  const blocks = text.replace(/\r/g, '').split('\n\n');
+
+  for (const block of blocks) {
+    const lines = block.split('\n');
+    const timingIndex = lines.findIndex((line) => line.includes('-->'));
+    if (timingIndex === -1 || !lines[timingIndex + 1]) {
+      continue;
+    }
+
+    const [start, end] = lines[timingIndex].split('-->');
+    const [image, fragment] = lines[timingIndex + 1].split('#xywh=');
+    if (!fragment) {
+      continue;
+    }
+
+    const [x, y, width, height] = fragment.split(',').map(Number);
+    cues.push({
+      start: parseVttTime(start),
+      end: parseVttTime(end),
+      url: new URL(image, new URL(baseUrl, window.location.origin)).toString(),
+      x,
+      y,
+      width,
+      height,
+    });
+  }
+
+  return cues;
+};
+
 export interface UploadResponse {
   success: boolean;
   message: string;
@@ -88,6 +167,42 @@ export const mediaApi = {
     return `${API_BASE_URL}/thumbnail?path=${encodeURIComponent(path)}`;
   },
 
+  // Get storyboard cues for seek previews
+  getStoryboard: async (id: number): Promise<StoryboardCue[]> => {
+    const url = `${API_BASE_URL}/files/${id}/storyboard.vtt`;
+    const response = await api.get<string>(`/files/${id}/storyboard.vtt`, { responseType: 'text' });
+    return parseStoryboardVtt(response.data, url);
+  },
+
+  // Get keyframe index
+  getKeyframes: async (id: number): Promise<Keyframe[]> => {
+    const response = await api.get<Keyframe[]>(`/files/${id}/keyframes`);
+    return response.data;
+  },
+
+  // Get sprite sheet coordinate map for a page of files
+  getSpriteSheet: async (category: string | undefined, page: number, size: number = SPRITE_PAGE_SIZE): Promise<SpriteSheet> => {
+    const params = new URLSearchParams({ page: String(page), size: String(size) });
+    if (category) {
+      params.set('category', category);
+    }
+    const response = await api.get<SpriteSheet>(`/thumbnails/sprite/map?${params}`);
+    return response.data;
+  },
+
+  // Get sprite sheet image URL
+  getSpriteUrl: (sheet: SpriteSheet): string => {
+    const params = new URLSearchParams({
+      page: String(sheet.page),
+      size: String(sheet.size),
+      version: sheet.version,
+    });
+    if (sheet.category) {
+      params.set('category', sheet.category);
+    }
+    return `${API_BASE_URL}/thumbnails/sprite?${params}`;
+  },
+
   // Delete file
   deleteFile: async (id: number): Promise<{ success: string; message: string }> => {
     const response = await api.delete<{ success: string; message: string }>(`/files/${id}`);